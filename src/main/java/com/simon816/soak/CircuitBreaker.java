@@ -0,0 +1,55 @@
+package com.simon816.soak;
+
+/**
+ * Stops calling an endpoint after repeated failures. Once open, a single
+ * trial request is let through after a cool down period to decide whether
+ * to close the circuit again.
+ */
+public class CircuitBreaker {
+
+    private enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    public synchronized boolean allowRequest() {
+        switch (this.state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - this.openedAt >= this.openMillis) {
+                    this.state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                return false; // Trial request still in flight
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        this.state = State.CLOSED;
+        this.failures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        this.failures++;
+        if (this.state == State.HALF_OPEN || this.failures >= this.failureThreshold) {
+            this.state = State.OPEN;
+            this.openedAt = System.currentTimeMillis();
+        }
+    }
+}
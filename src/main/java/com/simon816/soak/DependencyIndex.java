@@ -0,0 +1,303 @@
+package com.simon816.soak;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.simon816.soak.PluginRepository.PartialVersionInfo;
+import com.simon816.soak.PluginRepository.PluginVersionInfo;
+import org.spongepowered.plugin.meta.version.DefaultArtifactVersion;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Persisted index of the dependencies between installed plugins, with the
+ * reverse edges kept in memory so dependents can be found without querying
+ * the repository.
+ */
+public class DependencyIndex {
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private static final Type ENTRIES_TYPE = new TypeToken<Map<String, Entry>>() {}.getType();
+
+    private final Path file;
+    private final Map<String, Entry> entries = Maps.newHashMap();
+    private final Map<String, Set<String>> dependents = Maps.newHashMap();
+    // Removed since startup, these stay loaded until the server restarts
+    private final Set<String> removed = Sets.newHashSet();
+
+    public DependencyIndex(Path file) {
+        this.file = file;
+    }
+
+    public synchronized void load() throws IOException {
+        this.entries.clear();
+        this.dependents.clear();
+        if (!Files.exists(this.file)) {
+            return;
+        }
+        Map<String, Entry> loaded;
+        try (Reader reader = Files.newBufferedReader(this.file, Charsets.UTF_8)) {
+            loaded = gson.fromJson(reader, ENTRIES_TYPE);
+        } catch (JsonParseException e) {
+            throw new IOException("Dependency index is corrupt, starting with an empty index", e);
+        }
+        if (loaded == null) {
+            return;
+        }
+        for (Map.Entry<String, Entry> entry : loaded.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            if (entry.getValue().dependencies == null) {
+                entry.getValue().dependencies = Lists.newArrayList();
+            }
+            this.entries.put(entry.getKey(), entry.getValue());
+            link(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void save() throws IOException {
+        Files.createDirectories(this.file.getParent());
+        // Write a temporary file first so a crash cannot leave a truncated index
+        Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, Charsets.UTF_8)) {
+            gson.toJson(this.entries, ENTRIES_TYPE, writer);
+        }
+        try {
+            Files.move(temp, this.file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public synchronized boolean contains(String pluginId) {
+        return this.entries.containsKey(pluginId);
+    }
+
+    /**
+     * Records an installed or updated plugin, replacing its previous
+     * dependencies. A plugin stays explicit once it was installed as such.
+     */
+    public synchronized void record(PluginVersionInfo version, String filename, boolean explicit) throws IOException {
+        String id = version.getPluginId();
+        Entry old = this.entries.get(id);
+        if (old != null) {
+            unlink(id, old);
+        }
+        Entry entry = new Entry();
+        entry.version = version.getVersion().toString();
+        entry.file = filename != null ? filename : old != null ? old.file : null;
+        entry.explicit = explicit || old != null && old.explicit;
+        for (PartialVersionInfo dependency : version.getDependencies()) {
+            entry.dependencies.add(dependency.getPluginId());
+        }
+        this.entries.put(id, entry);
+        this.removed.remove(id);
+        link(id, entry);
+        save();
+    }
+
+    /**
+     * Records a plugin found on the server that was not installed by soak.
+     * {@code info} is the repository's closest version, or null if the
+     * repository does not know the plugin.
+     */
+    public synchronized void recordExisting(String pluginId, String installedVersion, @Nullable PluginVersionInfo info)
+            throws IOException {
+        Entry old = this.entries.get(pluginId);
+        if (old != null) {
+            unlink(pluginId, old);
+        }
+        Entry entry = new Entry();
+        entry.version = installedVersion;
+        entry.file = old != null ? old.file : null;
+        entry.explicit = old == null || old.explicit;
+        entry.unknown = info == null;
+        if (info != null) {
+            entry.approximate = info.getVersion().compareTo(new DefaultArtifactVersion(installedVersion)) != 0;
+            for (PartialVersionInfo dependency : info.getDependencies()) {
+                entry.dependencies.add(dependency.getPluginId());
+            }
+        }
+        this.entries.put(pluginId, entry);
+        this.removed.remove(pluginId);
+        link(pluginId, entry);
+        save();
+    }
+
+    public synchronized void remove(Collection<String> pluginIds) throws IOException {
+        for (String id : pluginIds) {
+            Entry entry = this.entries.remove(id);
+            if (entry != null) {
+                unlink(id, entry);
+            }
+            this.removed.add(id);
+        }
+        save();
+    }
+
+    private void link(String id, Entry entry) {
+        for (String dependency : entry.dependencies) {
+            this.dependents.computeIfAbsent(dependency, k -> Sets.newHashSet()).add(id);
+        }
+    }
+
+    private void unlink(String id, Entry entry) {
+        for (String dependency : entry.dependencies) {
+            Set<String> set = this.dependents.get(dependency);
+            if (set != null) {
+                set.remove(id);
+                if (set.isEmpty()) {
+                    this.dependents.remove(dependency);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether the index has seen the plugin, either as installed or
+     * as removed since the server started.
+     */
+    public synchronized boolean isKnown(String pluginId) {
+        return this.entries.containsKey(pluginId) || this.removed.contains(pluginId);
+    }
+
+    public synchronized Set<String> getPluginIds() {
+        return Sets.newHashSet(this.entries.keySet());
+    }
+
+    @Nullable
+    public synchronized String getVersion(String pluginId) {
+        Entry entry = this.entries.get(pluginId);
+        return entry == null ? null : entry.version;
+    }
+
+    public synchronized boolean isApproximate(String pluginId) {
+        Entry entry = this.entries.get(pluginId);
+        return entry != null && entry.approximate;
+    }
+
+    public synchronized boolean isInRepository(String pluginId) {
+        Entry entry = this.entries.get(pluginId);
+        return entry != null && !entry.unknown;
+    }
+
+    @Nullable
+    public synchronized String getFilename(String pluginId) {
+        Entry entry = this.entries.get(pluginId);
+        return entry == null ? null : entry.file;
+    }
+
+    public synchronized boolean isExplicit(String pluginId) {
+        Entry entry = this.entries.get(pluginId);
+        return entry != null && entry.explicit;
+    }
+
+    public synchronized Set<String> getDependents(String pluginId) {
+        Set<String> set = this.dependents.get(pluginId);
+        return set == null ? Collections.emptySet() : Sets.newHashSet(set);
+    }
+
+    /**
+     * Gets every plugin that directly or transitively depends on any of the
+     * given plugins, not including the plugins themselves.
+     */
+    public synchronized Set<String> getAllDependents(Collection<String> pluginIds) {
+        Set<String> result = Sets.newLinkedHashSet();
+        Deque<String> queue = Lists.newLinkedList(pluginIds);
+        while (!queue.isEmpty()) {
+            for (String dependent : getDependents(queue.poll())) {
+                if (!pluginIds.contains(dependent) && result.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the plugins that were only installed as dependencies and would no
+     * longer be required by anything once the given plugins are removed.
+     */
+    public synchronized Set<String> getOrphans(Collection<String> removed) {
+        Set<String> gone = Sets.newHashSet(removed);
+        Set<String> orphans = Sets.newLinkedHashSet();
+        Deque<String> queue = Lists.newLinkedList(removed);
+        while (!queue.isEmpty()) {
+            Entry entry = this.entries.get(queue.poll());
+            if (entry == null) {
+                continue;
+            }
+            for (String dependency : entry.dependencies) {
+                if (gone.contains(dependency) || !this.entries.containsKey(dependency) || isExplicit(dependency)) {
+                    continue;
+                }
+                if (gone.containsAll(getDependents(dependency))) {
+                    gone.add(dependency);
+                    orphans.add(dependency);
+                    queue.add(dependency);
+                }
+            }
+        }
+        return orphans;
+    }
+
+    /**
+     * Gets the chains of dependents that lead to the given plugin, each
+     * starting at a plugin nothing else depends on.
+     */
+    public synchronized List<List<String>> getDependentChains(String pluginId) {
+        List<List<String>> chains = Lists.newArrayList();
+        collectChains(Lists.newArrayList(pluginId), chains);
+        return chains;
+    }
+
+    private void collectChains(List<String> chain, List<List<String>> chains) {
+        Set<String> dependents = getDependents(chain.get(0));
+        boolean extended = false;
+        for (String dependent : dependents) {
+            if (chain.contains(dependent)) {
+                continue; // Cyclic dependency
+            }
+            List<String> next = Lists.newArrayList(dependent);
+            next.addAll(chain);
+            collectChains(next, chains);
+            extended = true;
+        }
+        if (!extended && chain.size() > 1) {
+            chains.add(chain);
+        }
+    }
+
+    private static class Entry {
+
+        private String version;
+        private String file;
+        private boolean explicit;
+        // Dependencies were taken from a different version than installed
+        private boolean approximate;
+        // Not found in the repository, so no dependencies are known
+        private boolean unknown;
+        private List<String> dependencies = Lists.newArrayList();
+    }
+}
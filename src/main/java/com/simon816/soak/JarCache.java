@@ -0,0 +1,141 @@
+package com.simon816.soak;
+
+import com.simon816.soak.PluginRepository.PluginVersionInfo;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.plugin.meta.version.ArtifactVersion;
+import org.spongepowered.plugin.meta.version.DefaultArtifactVersion;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.Optional;
+
+/**
+ * Keeps a copy of the last downloaded jar of each plugin, so that updates
+ * can be fetched as a {@link JarDelta} against it.
+ */
+public class JarCache {
+
+    private static final String EXTENSION = ".jar";
+
+    private final Path root;
+
+    public JarCache(Path root) {
+        this.root = root;
+    }
+
+    public Optional<LocalJar> find(String pluginId) {
+        Optional<LocalJar> installed = findInstalled(pluginId);
+        if (installed.isPresent()) {
+            return installed;
+        }
+        return findCached(pluginId);
+    }
+
+    public void store(PluginVersionInfo version, Path jar) throws IOException {
+        String versionName = version.getVersion().toString();
+        if (!isSafeName(version.getPluginId()) || !isSafeName(versionName)) {
+            throw new IOException("Refusing to cache " + version.getPluginId() + " version " + versionName);
+        }
+        Path dir = this.root.resolve(version.getPluginId());
+        Files.createDirectories(dir);
+        Path cached = dir.resolve(versionName + EXTENSION);
+        Files.copy(jar, cached, StandardCopyOption.REPLACE_EXISTING);
+        // Only the latest version is needed as a base for future deltas
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                if (!file.equals(cached)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static Optional<LocalJar> findInstalled(String pluginId) {
+        Optional<PluginContainer> plugin = Sponge.getPluginManager().getPlugin(pluginId);
+        if (!plugin.isPresent() || !plugin.get().getVersion().isPresent()) {
+            return Optional.empty();
+        }
+        return findInstalledJar(pluginId).map(path -> new LocalJar(new DefaultArtifactVersion(plugin.get().getVersion().get()), path));
+    }
+
+    /**
+     * Finds the jar a loaded plugin was loaded from.
+     */
+    public static Optional<Path> findInstalledJar(String pluginId) {
+        Optional<PluginContainer> plugin = Sponge.getPluginManager().getPlugin(pluginId);
+        if (!plugin.isPresent() || !plugin.get().getInstance().isPresent()) {
+            return Optional.empty();
+        }
+        CodeSource source = plugin.get().getInstance().get().getClass().getProtectionDomain().getCodeSource();
+        if (source == null) {
+            return Optional.empty();
+        }
+        URL location = source.getLocation();
+        Path path;
+        try {
+            path = Paths.get(location.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (!Files.isRegularFile(path) || !path.getFileName().toString().endsWith(EXTENSION)) {
+            return Optional.empty();
+        }
+        return Optional.of(path);
+    }
+
+    // IDs and versions come from the repository, keep them from escaping the cache directory
+    private static boolean isSafeName(String name) {
+        return !name.isEmpty() && !name.startsWith(".") && name.indexOf('/') == -1 && name.indexOf('\\') == -1
+                && name.indexOf(':') == -1;
+    }
+
+    private Optional<LocalJar> findCached(String pluginId) {
+        if (!isSafeName(pluginId)) {
+            return Optional.empty();
+        }
+        Path dir = this.root.resolve(pluginId);
+        if (!Files.isDirectory(dir)) {
+            return Optional.empty();
+        }
+        LocalJar latest = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ArtifactVersion version = new DefaultArtifactVersion(name.substring(0, name.length() - EXTENSION.length()));
+                if (latest == null || version.compareTo(latest.getVersion()) > 0) {
+                    latest = new LocalJar(version, file);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return Optional.ofNullable(latest);
+    }
+
+    public static class LocalJar {
+
+        private final ArtifactVersion version;
+        private final Path path;
+
+        LocalJar(ArtifactVersion version, Path path) {
+            this.version = version;
+            this.path = path;
+        }
+
+        public ArtifactVersion getVersion() {
+            return this.version;
+        }
+
+        public Path getPath() {
+            return this.path;
+        }
+    }
+}
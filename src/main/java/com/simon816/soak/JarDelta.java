@@ -0,0 +1,215 @@
+package com.simon816.soak;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.simon816.soak.PluginRepository.PluginJar;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary diff between two versions of a plugin jar.
+ *
+ * <p>A delta is a sequence of copy operations (ranges of the old jar) and
+ * insert operations (literal bytes), found by matching fixed size blocks of
+ * the old jar using a rolling checksum.</p>
+ */
+public class JarDelta {
+
+    private static final int MAGIC = 0x534B4431; // SKD1
+    private static final int BLOCK_SIZE = 512;
+    private static final int MAX_TARGET_SIZE = 128 * 1024 * 1024;
+
+    private static final int OP_END = 0;
+    private static final int OP_COPY = 1;
+    private static final int OP_INSERT = 2;
+
+    public static void create(byte[] base, byte[] target, String filename, OutputStream output) throws IOException {
+        Map<Integer, List<Integer>> blocks = Maps.newHashMap();
+        for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE) {
+            blocks.computeIfAbsent(checksum(base, offset), k -> Lists.newArrayList()).add(offset);
+        }
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeUTF(filename);
+        out.writeInt(base.length);
+        out.writeInt(target.length);
+        out.write(Hashing.md5().hashBytes(target).asBytes());
+
+        int pos = 0;
+        int literalStart = 0;
+        int sum = -1;
+        while (pos + BLOCK_SIZE <= target.length) {
+            if (sum == -1) {
+                sum = checksum(target, pos);
+            }
+            int match = findBlock(blocks.get(sum), base, target, pos);
+            if (match != -1) {
+                int length = BLOCK_SIZE;
+                while (pos + length < target.length && match + length < base.length
+                        && target[pos + length] == base[match + length]) {
+                    length++;
+                }
+                writeInsert(out, target, literalStart, pos - literalStart);
+                out.writeByte(OP_COPY);
+                out.writeInt(match);
+                out.writeInt(length);
+                pos += length;
+                literalStart = pos;
+                sum = -1;
+            } else {
+                if (pos + BLOCK_SIZE < target.length) {
+                    sum = roll(sum, target[pos], target[pos + BLOCK_SIZE]);
+                }
+                pos++;
+            }
+        }
+        writeInsert(out, target, literalStart, target.length - literalStart);
+        out.writeByte(OP_END);
+        out.flush();
+    }
+
+    /**
+     * Reconstructs the new jar from the old one, verifying it against the
+     * MD5 of the new jar recorded in the delta.
+     */
+    public static Result apply(byte[] base, InputStream delta) throws IOException {
+        DataInputStream in = new DataInputStream(delta);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a jar delta");
+        }
+        String filename = in.readUTF();
+        if (!isSafeFilename(filename)) {
+            throw new IOException("Invalid jar filename in delta: " + filename);
+        }
+        if (in.readInt() != base.length) {
+            throw new IOException("Delta does not apply to the local jar");
+        }
+        int targetLength = in.readInt();
+        if (targetLength < 0 || targetLength > MAX_TARGET_SIZE) {
+            throw new IOException("Unexpected jar size in delta: " + targetLength);
+        }
+        byte[] target = new byte[targetLength];
+        byte[] md5 = new byte[16];
+        in.readFully(md5);
+        int pos = 0;
+        for (int op = in.readUnsignedByte(); op != OP_END; op = in.readUnsignedByte()) {
+            if (op == OP_COPY) {
+                int offset = in.readInt();
+                int length = in.readInt();
+                if (offset < 0 || length < 0 || (long) offset + length > base.length || (long) pos + length > target.length) {
+                    throw new IOException("Malformed delta");
+                }
+                System.arraycopy(base, offset, target, pos, length);
+                pos += length;
+            } else if (op == OP_INSERT) {
+                int length = in.readInt();
+                if (length < 0 || (long) pos + length > target.length) {
+                    throw new IOException("Malformed delta");
+                }
+                in.readFully(target, pos, length);
+                pos += length;
+            } else {
+                throw new IOException("Unknown delta operation " + op);
+            }
+        }
+        if (pos != target.length || !Arrays.equals(md5, Hashing.md5().hashBytes(target).asBytes())) {
+            throw new IOException("Reconstructed jar failed verification");
+        }
+        return new Result(filename, target);
+    }
+
+    /**
+     * Checks that a jar filename is a plain name that cannot escape the
+     * directory it is resolved against.
+     */
+    public static boolean isSafeFilename(String filename) {
+        return filename.endsWith(".jar") && !filename.startsWith(".") && filename.indexOf('/') == -1
+                && filename.indexOf('\\') == -1 && filename.indexOf(':') == -1;
+    }
+
+    private static void writeInsert(DataOutputStream out, byte[] data, int offset, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        out.writeByte(OP_INSERT);
+        out.writeInt(length);
+        out.write(data, offset, length);
+    }
+
+    private static int findBlock(List<Integer> candidates, byte[] base, byte[] target, int pos) {
+        if (candidates == null) {
+            return -1;
+        }
+        for (int offset : candidates) {
+            if (regionMatches(base, offset, target, pos, BLOCK_SIZE)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Adler-style weak checksum, packed as (b << 16) | a so it is never -1
+    private static int checksum(byte[] data, int offset) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            int x = data[offset + i] & 0xFF;
+            a += x;
+            b += (BLOCK_SIZE - i) * x;
+        }
+        return ((b & 0x7FFF) << 16) | (a & 0xFFFF);
+    }
+
+    private static int roll(int sum, byte out, byte in) {
+        int a = sum & 0xFFFF;
+        int b = sum >>> 16;
+        a = (a - (out & 0xFF) + (in & 0xFF)) & 0xFFFF;
+        b = (b - BLOCK_SIZE * (out & 0xFF) + a) & 0x7FFF;
+        return (b << 16) | a;
+    }
+
+    public static class Result implements PluginJar {
+
+        private final String filename;
+        private final byte[] data;
+        private final InputStream stream;
+
+        Result(String filename, byte[] data) {
+            this.filename = filename;
+            this.data = data;
+            this.stream = new ByteArrayInputStream(data);
+        }
+
+        public byte[] getBytes() {
+            return this.data;
+        }
+
+        @Override
+        public String getFilename() {
+            return this.filename;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return this.stream;
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.simon816.soak;
 import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
-import com.google.common.io.Resources;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import org.spongepowered.plugin.meta.version.ArtifactVersion;
@@ -12,32 +12,52 @@ import org.spongepowered.plugin.meta.version.DefaultArtifactVersion;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLEncoder;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import javax.annotation.Nullable;
+
 public class OreRepository implements PluginRepository {
 
     private static final URL ORE_ROOT = createUrl("https://ore-staging.spongepowered.org/");
     private static final URL API_URL = createUrl(ORE_ROOT, "api/v1/");
 
+    private static final int PAGE_SIZE = 25;
+    static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    static final int READ_TIMEOUT_MILLIS = 15000;
+
     private static final Gson gson = new GsonBuilder().create();
 
     static {
         SSLHack.disableCerts();
     }
 
+    @Nullable private final URL deltaUrl;
+
+    public OreRepository() {
+        this(null); // Ore does not serve deltas
+    }
+
+    public OreRepository(@Nullable URL deltaUrl) {
+        this.deltaUrl = deltaUrl;
+    }
+
     private static URL createUrl(URL root, String url) {
         return createUrl(root.toExternalForm() + url);
     }
 
-    private static URL createUrl(String url) {
+    static URL createUrl(String url) {
         try {
             return new URL(url);
         } catch (MalformedURLException e) {
@@ -45,27 +65,50 @@ public class OreRepository implements PluginRepository {
         }
     }
 
+    private static InputStream connect(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        return connection.getInputStream();
+    }
+
     private static Reader open(URL url) throws IOException {
+        InputStream stream = openStream(url);
+        return stream == null ? null : new InputStreamReader(stream, Charsets.UTF_8);
+    }
+
+    private static InputStream openStream(URL url) throws IOException {
         try {
-            return Resources.asCharSource(url, Charsets.UTF_8).openStream();
+            return connect(url);
         } catch (FileNotFoundException fnfe) {
             return null;
         }
     }
 
-    @Override
-    public PluginVersionInfo getVersionInfo(String pluginId) throws IOException {
-        Reader stream = open(createUrl(API_URL, "projects/" + pluginId + "/versions"));
+    private static <T> T fetch(URL url, Class<T> type) throws IOException {
+        Reader stream = open(url);
         if (stream == null) {
             return null;
         }
         try {
-            return gson.fromJson(stream, OreVersionInfo[].class)[0];
+            return gson.fromJson(stream, type);
         } finally {
             stream.close();
         }
     }
 
+    @Override
+    public PluginVersionInfo getVersionInfo(String pluginId) throws IOException {
+        OreVersionInfo[] versions = fetch(createUrl(API_URL, "projects/" + pluginId + "/versions"), OreVersionInfo[].class);
+        return versions == null || versions.length == 0 ? null : versions[0];
+    }
+
+    @Override
+    public PluginVersionInfo getVersionInfo(String pluginId, ArtifactVersion version) throws IOException {
+        return fetch(createUrl(API_URL, "projects/" + pluginId + "/versions/" + URLEncoder.encode(version.toString(), "UTF-8")),
+                OreVersionInfo.class);
+    }
+
     @Override
     public Collection<PluginInfo> search(String query) throws IOException {
         Reader stream = open(createUrl(API_URL, "projects?q=" + query));
@@ -79,6 +122,34 @@ public class OreRepository implements PluginRepository {
         }
     }
 
+    @Override
+    public Collection<PluginInfo> getPlugins() throws IOException {
+        List<PluginInfo> plugins = Lists.newArrayList();
+        Set<String> seen = Sets.newHashSet();
+        for (int offset = 0;; offset += PAGE_SIZE) {
+            Reader stream = open(createUrl(API_URL, "projects?limit=" + PAGE_SIZE + "&offset=" + offset));
+            if (stream == null) {
+                break;
+            }
+            OrePluginInfo[] page;
+            try {
+                page = gson.fromJson(stream, OrePluginInfo[].class);
+            } finally {
+                stream.close();
+            }
+            for (OrePluginInfo plugin : page) {
+                if (seen.add(plugin.getId())) {
+                    plugins.add(plugin);
+                }
+            }
+            // Stop on a short page, or if the server ignored the offset
+            if (page.length < PAGE_SIZE || seen.size() < offset + page.length) {
+                break;
+            }
+        }
+        return plugins;
+    }
+
     @Override
     public PluginJar getPluginJar(PluginVersionInfo version) throws IOException {
         Reader stream = open(createUrl(API_URL, "projects/" + version.getPluginId()));
@@ -92,7 +163,7 @@ public class OreRepository implements PluginRepository {
             stream.close();
         }
         URL zipUrl = createUrl(info.getWebLink() + "/versions/download/" + version.getVersion());
-        ZipInputStream zipStream = new ZipInputStream(zipUrl.openStream());
+        ZipInputStream zipStream = new ZipInputStream(connect(zipUrl));
         ZipEntry jarInfo = zipStream.getNextEntry();
         return new PluginJar() {
 
@@ -108,6 +179,15 @@ public class OreRepository implements PluginRepository {
         };
     }
 
+    @Override
+    public InputStream getPluginJarDelta(PluginVersionInfo version, ArtifactVersion baseVersion) throws IOException {
+        if (this.deltaUrl == null) {
+            return null;
+        }
+        return openStream(createUrl(this.deltaUrl, "projects/" + version.getPluginId() + "/versions/" + version.getVersion()
+                + "/delta?from=" + baseVersion));
+    }
+
     public static class OrePluginInfo implements PluginInfo {
 
         private String pluginId;
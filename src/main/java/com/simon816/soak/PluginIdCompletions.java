@@ -0,0 +1,63 @@
+package com.simon816.soak;
+
+import com.google.common.collect.Sets;
+import com.simon816.soak.PluginRepository.PluginInfo;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.plugin.PluginContainer;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Holds the plugin ID tries used for command completion. Both tries are
+ * rebuilt on async tasks, completions only read the current instances.
+ */
+public class PluginIdCompletions {
+
+    private volatile Collection<String> catalog = Collections.emptySet();
+    private volatile PluginIdTrie installed = PluginIdTrie.EMPTY;
+    private volatile PluginIdTrie all = PluginIdTrie.EMPTY;
+
+    public PluginIdTrie getInstalled() {
+        return this.installed;
+    }
+
+    public PluginIdTrie getAll() {
+        return this.all;
+    }
+
+    /**
+     * Rebuilds the tries from the locally installed plugins, reusing the
+     * last fetched catalog. Does not perform network I/O.
+     */
+    public void refreshInstalled() {
+        DependencyIndex index = SoakPlugin.instance().getDependencyIndex();
+        Set<String> ids = index.getPluginIds();
+        // Loaded plugins still list removed plugins until restart, so only fill in what the index has not seen.
+        // Containers without an instance are the platform itself and cannot be removed or updated
+        for (PluginContainer plugin : Sponge.getPluginManager().getPlugins()) {
+            if (plugin.getInstance().isPresent() && !index.isKnown(plugin.getId())) {
+                ids.add(plugin.getId());
+            }
+        }
+        PluginIdTrie installed = new PluginIdTrie(ids);
+        ids.addAll(this.catalog);
+        this.installed = installed;
+        this.all = new PluginIdTrie(ids);
+    }
+
+    /**
+     * Fetches the repository catalog then rebuilds the tries. Must not be
+     * called on the main thread.
+     */
+    public void refreshCatalog() throws IOException {
+        Set<String> ids = Sets.newHashSet();
+        for (PluginInfo plugin : SoakPlugin.instance().getRepository().getPlugins()) {
+            ids.add(plugin.getId());
+        }
+        this.catalog = ids;
+        refreshInstalled();
+    }
+}
@@ -0,0 +1,41 @@
+package com.simon816.soak;
+
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.ArgumentParseException;
+import org.spongepowered.api.command.args.CommandArgs;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.args.CommandElement;
+import org.spongepowered.api.text.Text;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Plugin ID argument, parsed as a plain string and completed from the
+ * {@link PluginIdCompletions} tries.
+ */
+public class PluginIdElement extends CommandElement {
+
+    private static final int MAX_COMPLETIONS = 50;
+
+    private final boolean installedOnly;
+
+    public PluginIdElement(@Nullable Text key, boolean installedOnly) {
+        super(key);
+        this.installedOnly = installedOnly;
+    }
+
+    @Nullable
+    @Override
+    protected Object parseValue(CommandSource source, CommandArgs args) throws ArgumentParseException {
+        return args.next();
+    }
+
+    @Override
+    public List<String> complete(CommandSource src, CommandArgs args, CommandContext context) {
+        PluginIdCompletions completions = SoakPlugin.instance().getPluginIds();
+        PluginIdTrie trie = this.installedOnly ? completions.getInstalled() : completions.getAll();
+        return trie.complete(args.nextIfPresent().orElse(""), MAX_COMPLETIONS);
+    }
+}
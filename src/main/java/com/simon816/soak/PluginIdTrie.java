@@ -0,0 +1,72 @@
+package com.simon816.soak;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable prefix tree of plugin IDs. Instances are built off the main
+ * thread and swapped in whole, so lookups never need to lock.
+ */
+public class PluginIdTrie {
+
+    public static final PluginIdTrie EMPTY = new PluginIdTrie(Collections.emptyList());
+
+    private final Node root = new Node();
+    private final int size;
+
+    public PluginIdTrie(Collection<String> ids) {
+        int count = 0;
+        for (String id : ids) {
+            Node node = this.root;
+            for (int i = 0; i < id.length(); i++) {
+                node = node.children.computeIfAbsent(Character.toLowerCase(id.charAt(i)), c -> new Node());
+            }
+            if (node.id == null) {
+                node.id = id;
+                count++;
+            }
+        }
+        this.size = count;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public List<String> complete(String prefix, int limit) {
+        Node node = this.root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(Character.toLowerCase(prefix.charAt(i)));
+        }
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        List<String> results = Lists.newArrayList();
+        collect(node, results, limit);
+        return results;
+    }
+
+    private static void collect(Node node, List<String> results, int limit) {
+        if (node.id != null) {
+            results.add(node.id);
+        }
+        for (Node child : node.children.values()) {
+            if (results.size() >= limit) {
+                return;
+            }
+            collect(child, results, limit);
+        }
+    }
+
+    private static class Node {
+
+        // Sorted so completions come out in alphabetical order
+        final Map<Character, Node> children = Maps.newTreeMap();
+        String id;
+    }
+}
@@ -4,6 +4,8 @@ import org.spongepowered.plugin.meta.version.ArtifactVersion;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
@@ -12,10 +14,33 @@ public interface PluginRepository {
 
     PluginVersionInfo getVersionInfo(String pluginId) throws IOException;
 
+    PluginVersionInfo getVersionInfo(String pluginId, ArtifactVersion version) throws IOException;
+
     Collection<PluginInfo> search(String query) throws IOException;
 
+    Collection<PluginInfo> getPlugins() throws IOException;
+
     PluginJar getPluginJar(PluginVersionInfo info) throws IOException;
 
+    /**
+     * Opens a {@link JarDelta} from the given base version to the version
+     * described by {@code info}, or returns null if no delta is available.
+     */
+    InputStream getPluginJarDelta(PluginVersionInfo info, ArtifactVersion baseVersion) throws IOException;
+
+    /**
+     * Gets the jar for {@code info} by patching a local copy of an older
+     * version. Returns null if no delta is available, and throws if the
+     * delta does not reconstruct a jar matching the hash in its header.
+     */
+    default JarDelta.Result getPluginJarFromDelta(PluginVersionInfo info, ArtifactVersion baseVersion, Path baseJar)
+            throws IOException {
+        // The repository's size and MD5 describe its download archive, not the jar, so only the delta's hash applies
+        try (InputStream delta = getPluginJarDelta(info, baseVersion)) {
+            return delta == null ? null : JarDelta.apply(Files.readAllBytes(baseJar), delta);
+        }
+    }
+
     interface PluginInfo {
 
         String getId();
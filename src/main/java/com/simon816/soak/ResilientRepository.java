@@ -0,0 +1,190 @@
+package com.simon816.soak;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.spongepowered.plugin.meta.version.ArtifactVersion;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps a {@link PluginRepository} with a circuit breaker per endpoint.
+ * Single request metadata calls are hedged with a duplicate request when
+ * slow, and the last successful result is served while an endpoint is
+ * failing.
+ */
+public class ResilientRepository implements PluginRepository {
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long HEDGE_DELAY_MILLIS = 750;
+    // Only bounds how long the caller waits. The read timeout applies to each read, so a request that was
+    // given up on can keep its thread for longer, MAX_THREADS caps how many threads that can hold
+    private static final long TIMEOUT_MILLIS = OreRepository.CONNECT_TIMEOUT_MILLIS + OreRepository.READ_TIMEOUT_MILLIS;
+    private static final int MAX_THREADS = 4;
+    private static final int STALE_CACHE_SIZE = 1000;
+
+    private final PluginRepository delegate;
+    private final Map<String, CircuitBreaker> breakers = Maps.newConcurrentMap();
+    private final Cache<String, Optional<Object>> staleCache = CacheBuilder.newBuilder().maximumSize(STALE_CACHE_SIZE).build();
+    private final ExecutorService executor = new ThreadPoolExecutor(0, MAX_THREADS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new ThreadFactoryBuilder().setNameFormat("soak-repository-%d").setDaemon(true).build());
+
+    public ResilientRepository(PluginRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public PluginVersionInfo getVersionInfo(String pluginId) throws IOException {
+        return call("versions", pluginId, true, () -> this.delegate.getVersionInfo(pluginId));
+    }
+
+    @Override
+    public PluginVersionInfo getVersionInfo(String pluginId, ArtifactVersion version) throws IOException {
+        return call("versions", pluginId + "@" + version, true, () -> this.delegate.getVersionInfo(pluginId, version));
+    }
+
+    @Override
+    public Collection<PluginInfo> search(String query) throws IOException {
+        return call("search", query, true, () -> this.delegate.search(query));
+    }
+
+    @Override
+    public Collection<PluginInfo> getPlugins() throws IOException {
+        // Pages through the catalog, too many requests to hedge as a whole
+        return call("plugins", "", false, () -> this.delegate.getPlugins());
+    }
+
+    @Override
+    public PluginJar getPluginJar(PluginVersionInfo info) throws IOException {
+        return call("download", null, false, () -> this.delegate.getPluginJar(info));
+    }
+
+    @Override
+    public InputStream getPluginJarDelta(PluginVersionInfo info, ArtifactVersion baseVersion) throws IOException {
+        return call("delta", null, false, () -> this.delegate.getPluginJarDelta(info, baseVersion));
+    }
+
+    /**
+     * Calls an endpoint through its circuit breaker. Calls with a cache key
+     * fall back to the last successful result, {@code hedge} must only be
+     * set for calls that make a single request.
+     */
+    private <T> T call(String endpoint, String cacheKey, boolean hedge, Callable<T> request) throws IOException {
+        CircuitBreaker breaker = this.breakers.computeIfAbsent(endpoint, k -> new CircuitBreaker(FAILURE_THRESHOLD, OPEN_MILLIS));
+        String key = endpoint + ":" + cacheKey;
+        if (!breaker.allowRequest()) {
+            return stale(endpoint, key, cacheKey != null, null);
+        }
+        T result;
+        boolean failed = false;
+        try {
+            result = hedge ? hedged(request) : request.call();
+        } catch (IOException e) {
+            failed = true;
+            return stale(endpoint, key, cacheKey != null, e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            // Only I/O errors mean the endpoint is unavailable. Recording every outcome here also
+            // ends a half open trial that threw something unexpected
+            if (failed) {
+                breaker.recordFailure();
+            } else {
+                breaker.recordSuccess();
+            }
+        }
+        if (cacheKey != null) {
+            this.staleCache.put(key, Optional.ofNullable(result));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T stale(String endpoint, String key, boolean cacheable, IOException cause) throws IOException {
+        Optional<Object> cached = cacheable ? this.staleCache.getIfPresent(key) : null;
+        if (cached != null) {
+            return (T) cached.orElse(null);
+        }
+        if (cause != null) {
+            throw cause;
+        }
+        throw new IOException("Repository endpoint '" + endpoint + "' is unavailable");
+    }
+
+    private <T> T hedged(Callable<T> request) throws Exception {
+        CompletionService<T> completion = new ExecutorCompletionService<>(this.executor);
+        List<Future<T>> futures = Lists.newArrayList();
+        try {
+            futures.add(completion.submit(request));
+        } catch (RejectedExecutionException e) {
+            return request.call(); // All threads busy, make the request without hedging
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        boolean hedged = false;
+        IOException failure = null;
+        int pending = 1;
+        try {
+            while (pending > 0) {
+                long remaining = deadline - System.nanoTime();
+                long wait = hedged ? remaining : Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(HEDGE_DELAY_MILLIS));
+                Future<T> done = completion.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    if (!hedged && remaining > 0) {
+                        // Slow response, race a duplicate request against it if a thread is free
+                        hedged = true;
+                        try {
+                            futures.add(completion.submit(request));
+                            pending++;
+                        } catch (RejectedExecutionException e) {
+                            // Keep waiting on the first request
+                        }
+                        continue;
+                    }
+                    throw new IOException("Repository request timed out");
+                }
+                pending--;
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        failure = (IOException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw (Exception) cause; // Not an I/O problem, a duplicate request would fail the same way
+                    }
+                }
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.simon816.soak;
 
 import static org.spongepowered.api.command.args.GenericArguments.allOf;
-import static org.spongepowered.api.command.args.GenericArguments.string;
+import static org.spongepowered.api.command.args.GenericArguments.flags;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -9,6 +9,7 @@ import org.spongepowered.api.command.CommandCallable;
 import org.spongepowered.api.command.CommandPermissionException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.args.CommandElement;
 import org.spongepowered.api.command.source.ConsoleSource;
 import org.spongepowered.api.command.spec.CommandExecutor;
 import org.spongepowered.api.command.spec.CommandSpec;
@@ -38,21 +39,33 @@ public class SoakCommand {
         };
     }
 
+    private static CommandElement pluginId(Text key) {
+        return new PluginIdElement(key, false);
+    }
+
+    private static CommandElement installedPluginId(Text key) {
+        return new PluginIdElement(key, true);
+    }
+
     private static Map<List<String>, CommandSpec> createChildCommands() {
         Map<List<String>, CommandSpec> commands = Maps.newHashMap();
         commands.put(Lists.newArrayList("install"), CommandSpec.builder()
-                .arguments(allOf(string(Text.of("pluginid"))))
+                .arguments(allOf(pluginId(Text.of("pluginid"))))
                 .executor(consoleOnly(SoakCommand::install))
                 .build());
         commands.put(Lists.newArrayList("update"), CommandSpec.builder()
                 .executor(consoleOnly(SoakCommand::update))
                 .build());
         commands.put(Lists.newArrayList("remove"), CommandSpec.builder()
-                .arguments(allOf(string(Text.of("pluginid"))))
+                .arguments(flags().flag("c", "-cascade").flag("o", "-orphans").buildWith(allOf(installedPluginId(Text.of("pluginid")))))
                 .executor(consoleOnly(SoakCommand::remove))
                 .build());
+        commands.put(Lists.newArrayList("why"), CommandSpec.builder()
+                .arguments(installedPluginId(Text.of("pluginid")))
+                .executor(consoleOnly(SoakCommand::why))
+                .build());
         commands.put(Lists.newArrayList("search"), CommandSpec.builder()
-                .arguments(string(Text.of("query")))
+                .arguments(pluginId(Text.of("query")))
                 .executor(consoleOnly(SoakCommand::search))
                 .build());
         return commands;
@@ -76,7 +89,12 @@ public class SoakCommand {
         if (ids.isEmpty()) {
             throw new IllegalArgumentException("No plugin IDs provided");
         }
-        SoakPlugin.instance().schedule(Tasks.remove(receiver, ids));
+        SoakPlugin.instance().schedule(Tasks.remove(receiver, ids, args.hasAny("c"), args.hasAny("o")));
+    }
+
+    private static void why(MessageReceiver receiver, CommandContext args) {
+        String id = args.<String>getOne("pluginid").get();
+        SoakPlugin.instance().schedule(Tasks.why(receiver, id));
     }
 
     private static void search(MessageReceiver receiver, CommandContext args) {
@@ -1,22 +1,34 @@
 package com.simon816.soak;
 
+import com.simon816.soak.PluginRepository.PluginVersionInfo;
 import org.slf4j.Logger;
 import org.spongepowered.api.Sponge;
+import org.spongepowered.api.config.ConfigDir;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.game.state.GameInitializationEvent;
 import org.spongepowered.api.plugin.Plugin;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.plugin.meta.version.DefaultArtifactVersion;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
 @Plugin(id = "soak", name = "Soak")
 public class SoakPlugin {
 
+    private static final long CATALOG_REFRESH_MINUTES = 30;
+
     private static SoakPlugin instance;
     @Inject private Logger logger;
+    @Inject @ConfigDir(sharedRoot = false) private Path configDir;
     private PluginRepository repo;
+    private JarCache jarCache;
+    private DependencyIndex dependencyIndex;
+    private final PluginIdCompletions pluginIds = new PluginIdCompletions();
 
     public SoakPlugin() {
         instance = this;
@@ -29,7 +41,56 @@ public class SoakPlugin {
     @Listener
     public void onInit(GameInitializationEvent event) {
         Sponge.getCommandManager().register(this, SoakCommand.build(), "soak", "apt-get");
-        this.repo = new OreRepository();
+        String deltaUrl = System.getProperty("soak.deltaUrl");
+        OreRepository ore = deltaUrl == null ? new OreRepository() : new OreRepository(OreRepository.createUrl(deltaUrl));
+        this.repo = new ResilientRepository(ore);
+        this.jarCache = new JarCache(this.configDir.resolve("cache"));
+        this.dependencyIndex = new DependencyIndex(this.configDir.resolve("dependencies.json"));
+        try {
+            this.dependencyIndex.load();
+        } catch (IOException e) {
+            this.logger.error("Failed to load dependency index", e);
+        }
+        schedule(this::indexInstalledPlugins);
+        Sponge.getScheduler().createTaskBuilder().async().interval(CATALOG_REFRESH_MINUTES, TimeUnit.MINUTES)
+                .execute(this::refreshPluginIds).submit(this);
+    }
+
+    private void refreshPluginIds() {
+        this.pluginIds.refreshInstalled();
+        try {
+            this.pluginIds.refreshCatalog();
+        } catch (IOException e) {
+            this.logger.warn("Failed to fetch plugin catalog for completion", e);
+        }
+    }
+
+    private void indexInstalledPlugins() {
+        // Plugins are only queried when first seen or changed outside soak, installs are recorded directly
+        for (PluginContainer plugin : Sponge.getPluginManager().getPlugins()) {
+            if (!plugin.getInstance().isPresent()) {
+                continue;
+            }
+            String version = plugin.getVersion().orElse(null);
+            String indexed = this.dependencyIndex.getVersion(plugin.getId());
+            if (indexed != null && (version == null
+                    || new DefaultArtifactVersion(version).compareTo(new DefaultArtifactVersion(indexed)) == 0)) {
+                continue;
+            }
+            try {
+                PluginVersionInfo info = null;
+                if (version != null) {
+                    info = this.repo.getVersionInfo(plugin.getId(), new DefaultArtifactVersion(version));
+                }
+                if (info == null) {
+                    // Fall back to the latest version, the index marks the entry as approximate
+                    info = this.repo.getVersionInfo(plugin.getId());
+                }
+                this.dependencyIndex.recordExisting(plugin.getId(), version != null ? version : "unknown", info);
+            } catch (IOException e) {
+                this.logger.warn("Could not index dependencies of " + plugin.getId(), e);
+            }
+        }
     }
 
     public static SoakPlugin instance() {
@@ -40,6 +101,18 @@ public class SoakPlugin {
         return this.repo;
     }
 
+    public JarCache getJarCache() {
+        return this.jarCache;
+    }
+
+    public DependencyIndex getDependencyIndex() {
+        return this.dependencyIndex;
+    }
+
+    public PluginIdCompletions getPluginIds() {
+        return this.pluginIds;
+    }
+
     public void schedule(Runnable task) {
         Sponge.getScheduler().createTaskBuilder().async().execute(task).submit(this);
     }
@@ -1,7 +1,9 @@
 package com.simon816.soak;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
+import com.simon816.soak.JarCache.LocalJar;
 import com.simon816.soak.PluginRepository.PartialVersionInfo;
 import com.simon816.soak.PluginRepository.PluginInfo;
 import com.simon816.soak.PluginRepository.PluginJar;
@@ -19,6 +21,7 @@ import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public class Tasks {
 
@@ -70,7 +73,7 @@ public class Tasks {
                         response.add(Text.of("Plugin ID '" + id + "' not found. Skipping"));
                         continue;
                     }
-                    performInstallation(plugin, response);
+                    performInstallation(plugin, response, true);
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
@@ -98,7 +101,8 @@ public class Tasks {
                         response.add(Text.of("Not found in the plugin repository"));
                         continue;
                     }
-                    performInstallation(updated, response);
+                    boolean explicit = !SoakPlugin.instance().getDependencyIndex().contains(updated.getPluginId());
+                    performInstallation(updated, response, explicit);
                 } catch (IOException e) {
                     // TODO Auto-generated catch block
                     e.printStackTrace();
@@ -110,15 +114,148 @@ public class Tasks {
     private static class RemoveTask extends SoakTask {
 
         private final Collection<String> ids;
+        private final boolean cascade;
+        private final boolean orphans;
 
-        public RemoveTask(MessageReceiver receiver, Collection<String> ids) {
+        public RemoveTask(MessageReceiver receiver, Collection<String> ids, boolean cascade, boolean orphans) {
             super(receiver);
             this.ids = ids;
+            this.cascade = cascade;
+            this.orphans = orphans;
         }
 
         @Override
         public void runTask(List<Text> response) {
-            System.out.println("Remove: " + this.ids);
+            DependencyIndex index = SoakPlugin.instance().getDependencyIndex();
+            Set<String> toRemove = Sets.newLinkedHashSet();
+            for (String id : this.ids) {
+                Optional<PluginContainer> loaded = Sponge.getPluginManager().getPlugin(id);
+                if (!index.contains(id) && (index.isKnown(id) || !loaded.isPresent())) {
+                    response.add(Text.of("Plugin ID '" + id + "' is not installed. Skipping"));
+                    continue;
+                }
+                if (loaded.isPresent() && !loaded.get().getInstance().isPresent()) {
+                    response.add(Text.of("'" + id + "' is not a plugin that can be removed. Skipping"));
+                    continue;
+                }
+                toRemove.add(id);
+            }
+            Set<String> dependents = index.getAllDependents(toRemove);
+            if (!dependents.isEmpty()) {
+                if (!this.cascade) {
+                    response.add(Text.of("The following plugins depend on " + toRemove + ": " + dependents));
+                    response.add(Text.of("Use --cascade to remove them as well. Aborting"));
+                    return;
+                }
+                response.add(Text.of("Also removing dependent plugins " + dependents));
+                toRemove.addAll(dependents);
+            }
+            Set<String> orphaned = index.getOrphans(toRemove);
+            if (!orphaned.isEmpty()) {
+                if (this.orphans) {
+                    response.add(Text.of("Also removing orphaned dependencies " + orphaned));
+                    toRemove.addAll(orphaned);
+                } else {
+                    response.add(Text.of("The following dependencies are no longer required: " + orphaned));
+                    response.add(Text.of("Use --orphans to remove them"));
+                }
+            }
+            Set<String> removed = Sets.newLinkedHashSet();
+            for (String id : toRemove) {
+                try {
+                    Set<Path> jars = findJars(index, id, response);
+                    if (jars == null) {
+                        continue;
+                    }
+                    for (Path jar : jars) {
+                        Files.deleteIfExists(jar);
+                        response.add(Text.of("Deleted " + jar.getFileName()));
+                    }
+                    removed.add(id);
+                    response.add(Text.of("Removed " + id));
+                } catch (IOException e) {
+                    response.add(Text.of("Failed to remove " + id + ": " + e.getMessage()));
+                }
+            }
+            try {
+                index.remove(removed);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            SoakPlugin.instance().getPluginIds().refreshInstalled();
+            if (!removed.isEmpty()) {
+                response.add(Text.of("Restart the server for the changes to take effect"));
+            }
+        }
+    }
+
+    /**
+     * Finds the jars to delete for a plugin, being the jar soak installed and
+     * the jar it was loaded from, which differ after an update. Returns null
+     * if any of them is outside the plugin directory or none can be found.
+     */
+    private static Set<Path> findJars(DependencyIndex index, String id, List<Text> response) throws IOException {
+        Path pluginDir = SoakPlugin.instance().getPluginDir().toRealPath();
+        Set<Path> candidates = Sets.newLinkedHashSet();
+        String filename = index.getFilename(id);
+        if (filename != null && Files.exists(pluginDir.resolve(filename))) {
+            candidates.add(pluginDir.resolve(filename));
+        }
+        Optional<Path> loaded = JarCache.findInstalledJar(id);
+        if (loaded.isPresent()) {
+            candidates.add(loaded.get());
+        }
+        Set<Path> jars = Sets.newLinkedHashSet();
+        for (Path candidate : candidates) {
+            Path jar = candidate.toRealPath();
+            if (!jar.startsWith(pluginDir)) {
+                response.add(Text.of(id + " was loaded from " + jar + ", outside the plugin directory. "
+                        + "It must be deleted manually"));
+                return null;
+            }
+            jars.add(jar);
+        }
+        if (jars.isEmpty()) {
+            response.add(Text.of("Jar of " + id + " could not be found, it must be deleted manually"));
+            return null;
+        }
+        return jars;
+    }
+
+    private static class WhyTask extends SoakTask {
+
+        private final String id;
+
+        public WhyTask(MessageReceiver receiver, String id) {
+            super(receiver);
+            this.id = id;
+        }
+
+        @Override
+        public void runTask(List<Text> response) {
+            DependencyIndex index = SoakPlugin.instance().getDependencyIndex();
+            if (!index.contains(this.id)) {
+                response.add(Text.of("Plugin ID '" + this.id + "' is not in the dependency index"));
+                return;
+            }
+            if (index.isExplicit(this.id)) {
+                response.add(Text.of(this.id + " was installed explicitly"));
+            }
+            if (!index.isInRepository(this.id)) {
+                response.add(Text.of(this.id + " is not in the plugin repository, its dependencies are unknown"));
+            } else if (index.isApproximate(this.id)) {
+                response.add(Text.of("Installed version of " + this.id + " is not in the plugin repository, "
+                        + "dependencies are those of the latest version"));
+            }
+            List<List<String>> chains = index.getDependentChains(this.id);
+            if (chains.isEmpty()) {
+                response.add(Text.of("No installed plugins depend on " + this.id));
+                return;
+            }
+            response.add(Text.of(this.id + " is required by:"));
+            for (List<String> chain : chains) {
+                response.add(Text.of("  " + String.join(" -> ", chain)));
+            }
         }
     }
 
@@ -153,7 +290,7 @@ public class Tasks {
         return new InstallTask(receiver, ids);
     }
 
-    private static void performInstallation(PluginVersionInfo plugin, List<Text> response) {
+    private static void performInstallation(PluginVersionInfo plugin, List<Text> response, boolean explicit) {
         response.add(Text.of("Preparing installation of " + plugin.getPluginId() + " version " + plugin.getVersion()));
         List<PartialVersionInfo> deps = plugin.getDependencies();
         if (!deps.isEmpty()) {
@@ -180,7 +317,7 @@ public class Tasks {
                         if (depVersion == null) {
                             response.add(Text.of("Could not find dependency"));
                         } else {
-                            performInstallation(depVersion, response);
+                            performInstallation(depVersion, response, false);
                         }
                     } catch (IOException e) {
                         e.printStackTrace();
@@ -190,13 +327,21 @@ public class Tasks {
         }
         response.add(Text.of("Will now install " + plugin.getPluginId()));
         try {
-            PluginJar jar = SoakPlugin.instance().getRepository().getPluginJar(plugin);
+            PluginJar jar = downloadJar(plugin, response);
+            if (!JarDelta.isSafeFilename(jar.getFilename())) {
+                jar.getInputStream().close();
+                response.add(Text.of("Refusing to install jar with unsafe filename '" + jar.getFilename() + "'"));
+                return;
+            }
             Path file = Files.createFile(SoakPlugin.instance().getPluginDir().resolve(jar.getFilename()));
             response.add(Text.of("Destination: " + file));
             OutputStream output = Files.newOutputStream(file);
             ByteStreams.copy(jar.getInputStream(), output);
             jar.getInputStream().close();
             output.close();
+            SoakPlugin.instance().getJarCache().store(plugin, file);
+            SoakPlugin.instance().getDependencyIndex().record(plugin, file.getFileName().toString(), explicit);
+            SoakPlugin.instance().getPluginIds().refreshInstalled();
             response.add(Text.of("Success"));
         } catch (IOException e) {
             // TODO Auto-generated catch block
@@ -204,6 +349,26 @@ public class Tasks {
         }
     }
 
+    private static PluginJar downloadJar(PluginVersionInfo plugin, List<Text> response) throws IOException {
+        PluginRepository repo = SoakPlugin.instance().getRepository();
+        Optional<LocalJar> local = SoakPlugin.instance().getJarCache().find(plugin.getPluginId());
+        if (!local.isPresent()) {
+            return repo.getPluginJar(plugin);
+        }
+        response.add(Text.of("Requesting delta from local version " + local.get().getVersion()));
+        try {
+            JarDelta.Result jar = repo.getPluginJarFromDelta(plugin, local.get().getVersion(), local.get().getPath());
+            if (jar != null) {
+                response.add(Text.of("Delta applied and verified"));
+                return jar;
+            }
+            response.add(Text.of("No delta available, downloading full jar"));
+        } catch (IOException e) {
+            response.add(Text.of("Delta rejected: " + e.getMessage() + ", downloading full jar"));
+        }
+        return repo.getPluginJar(plugin);
+    }
+
     private static void formatPlugin(PluginInfo plugin, List<Text> response) {
         response.add(Text.of(plugin.getName() + " (id=" + plugin.getId() + ")"));
         response.add(Text.of("  Version: " + plugin.getRecommendedVersion()));
@@ -215,8 +380,12 @@ public class Tasks {
         return new UpdateTask(receiver);
     }
 
-    public static SoakTask remove(MessageReceiver receiver, Collection<String> ids) {
-        return new RemoveTask(receiver, ids);
+    public static SoakTask remove(MessageReceiver receiver, Collection<String> ids, boolean cascade, boolean orphans) {
+        return new RemoveTask(receiver, ids, cascade, orphans);
+    }
+
+    public static SoakTask why(MessageReceiver receiver, String id) {
+        return new WhyTask(receiver, id);
     }
 
     public static SoakTask search(MessageReceiver receiver, String query) {
@@ -0,0 +1,76 @@
+package com.simon816.soak;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Local stand-in for a delta capable repository, used for testing delta
+ * updates. Jars are read from {@code <root>/<pluginId>/<version>/<name>.jar}
+ * and deltas are generated on request, keeping the jar's original name.
+ *
+ * <p>Usage: {@code DeltaServer [root] [port]}, then start the server with
+ * {@code -Dsoak.deltaUrl=http://localhost:<port>/}.</p>
+ */
+public class DeltaServer {
+
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "repo").toAbsolutePath().normalize();
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/projects/", exchange -> {
+            try {
+                handle(root, exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        System.out.println("Serving deltas for " + root + " on port " + port);
+    }
+
+    private static void handle(Path root, HttpExchange exchange) throws IOException {
+        // /projects/<pluginId>/versions/<version>/delta?from=<version>
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        String query = exchange.getRequestURI().getQuery();
+        if (parts.length != 6 || !parts[3].equals("versions") || !parts[5].equals("delta")
+                || query == null || !query.startsWith("from=")) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        Path plugin = root.resolve(parts[2]);
+        Path base = findJar(root, plugin.resolve(query.substring(5)));
+        Path target = findJar(root, plugin.resolve(parts[4]));
+        if (base == null || target == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        JarDelta.create(Files.readAllBytes(base), Files.readAllBytes(target), target.getFileName().toString(), delta);
+        exchange.sendResponseHeaders(200, delta.size());
+        OutputStream body = exchange.getResponseBody();
+        delta.writeTo(body);
+        body.close();
+        System.out.println("Served delta " + base.getFileName() + " -> " + target.getFileName() + " (" + delta.size() + " bytes)");
+    }
+
+    private static Path findJar(Path root, Path versionDir) throws IOException {
+        if (!versionDir.normalize().startsWith(root) || !Files.isDirectory(versionDir)) {
+            return null;
+        }
+        try (DirectoryStream<Path> jars = Files.newDirectoryStream(versionDir, "*.jar")) {
+            for (Path jar : jars) {
+                return jar;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,197 @@
+package com.simon816.soak;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.simon816.soak.PluginRepository.PartialVersionInfo;
+import com.simon816.soak.PluginRepository.PluginVersionInfo;
+import org.junit.Test;
+import org.spongepowered.plugin.meta.version.ArtifactVersion;
+import org.spongepowered.plugin.meta.version.DefaultArtifactVersion;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+public class DependencyIndexTest {
+
+    private static PluginVersionInfo version(String id, String version, String... dependencies) {
+        List<PartialVersionInfo> deps = Lists.newArrayList();
+        for (String dependency : dependencies) {
+            deps.add(new PartialVersionInfo() {
+
+                @Override
+                public String getPluginId() {
+                    return dependency;
+                }
+
+                @Override
+                public ArtifactVersion getVersion() {
+                    return new DefaultArtifactVersion("1.0");
+                }
+            });
+        }
+        return new PluginVersionInfo() {
+
+            @Override
+            public String getPluginId() {
+                return id;
+            }
+
+            @Override
+            public ArtifactVersion getVersion() {
+                return new DefaultArtifactVersion(version);
+            }
+
+            @Override
+            public Instant getReleaseDate() {
+                return Instant.EPOCH;
+            }
+
+            @Override
+            public long getFileSize() {
+                return 0;
+            }
+
+            @Override
+            public List<PartialVersionInfo> getDependencies() {
+                return deps;
+            }
+        };
+    }
+
+    private static DependencyIndex newIndex() throws IOException {
+        DependencyIndex index = new DependencyIndex(Files.createTempDirectory("soak").resolve("dependencies.json"));
+        index.load();
+        return index;
+    }
+
+    // app -> lib -> core, tool -> core; app and tool explicit
+    private static DependencyIndex sampleIndex() throws IOException {
+        DependencyIndex index = newIndex();
+        index.record(version("app", "1.0", "lib", "core"), "app.jar", true);
+        index.record(version("lib", "1.0", "core"), "lib.jar", false);
+        index.record(version("core", "1.0"), "core.jar", false);
+        index.record(version("tool", "1.0", "core"), "tool.jar", true);
+        return index;
+    }
+
+    @Test
+    public void testAllDependents() throws IOException {
+        DependencyIndex index = sampleIndex();
+        assertEquals(ImmutableSet.of("app", "lib", "tool"), index.getAllDependents(ImmutableSet.of("core")));
+        assertEquals(ImmutableSet.of("app"), index.getAllDependents(ImmutableSet.of("lib")));
+        assertTrue(index.getAllDependents(ImmutableSet.of("app")).isEmpty());
+    }
+
+    @Test
+    public void testOrphans() throws IOException {
+        DependencyIndex index = sampleIndex();
+        // core is still required by tool
+        assertEquals(ImmutableSet.of("lib"), index.getOrphans(ImmutableSet.of("app")));
+        assertEquals(ImmutableSet.of("lib", "core"), index.getOrphans(ImmutableSet.of("app", "tool")));
+    }
+
+    @Test
+    public void testExplicitIsNeverOrphaned() throws IOException {
+        DependencyIndex index = newIndex();
+        index.record(version("app", "1.0", "lib"), "app.jar", true);
+        index.record(version("lib", "1.0"), "lib.jar", true);
+        assertTrue(index.getOrphans(ImmutableSet.of("app")).isEmpty());
+    }
+
+    @Test
+    public void testDependentChains() throws IOException {
+        DependencyIndex index = sampleIndex();
+        List<List<String>> chains = index.getDependentChains("core");
+        assertEquals(3, chains.size());
+        assertTrue(chains.contains(ImmutableList.of("app", "core")));
+        assertTrue(chains.contains(ImmutableList.of("app", "lib", "core")));
+        assertTrue(chains.contains(ImmutableList.of("tool", "core")));
+    }
+
+    @Test
+    public void testDependentChainsCycle() throws IOException {
+        DependencyIndex index = newIndex();
+        index.record(version("a", "1.0", "b"), "a.jar", true);
+        index.record(version("b", "1.0", "a"), "b.jar", false);
+        assertEquals(ImmutableList.of(ImmutableList.of("b", "a")), index.getDependentChains("a"));
+    }
+
+    @Test
+    public void testUpdateReplacesDependencies() throws IOException {
+        DependencyIndex index = sampleIndex();
+        index.record(version("app", "2.0", "core"), null, false);
+        assertTrue(index.getDependents("lib").isEmpty());
+        assertEquals(ImmutableSet.of("app", "lib", "tool"), index.getDependents("core"));
+        assertEquals("2.0", index.getVersion("app"));
+        assertTrue(index.isExplicit("app"));
+        assertEquals("app.jar", index.getFilename("app"));
+    }
+
+    @Test
+    public void testRemove() throws IOException {
+        DependencyIndex index = sampleIndex();
+        index.remove(ImmutableSet.of("tool"));
+        assertFalse(index.contains("tool"));
+        assertTrue(index.isKnown("tool"));
+        assertEquals(ImmutableSet.of("app", "lib"), index.getDependents("core"));
+    }
+
+    @Test
+    public void testRecordExisting() throws IOException {
+        DependencyIndex index = newIndex();
+        index.recordExisting("exact", "1.0", version("exact", "1.0", "core"));
+        index.recordExisting("behind", "1.0", version("behind", "2.0", "core"));
+        index.recordExisting("missing", "1.0", null);
+        assertFalse(index.isApproximate("exact"));
+        assertTrue(index.isApproximate("behind"));
+        assertFalse(index.isInRepository("missing"));
+        assertTrue(index.contains("missing"));
+        assertEquals(ImmutableSet.of("exact", "behind"), index.getDependents("core"));
+    }
+
+    @Test
+    public void testPersisted() throws IOException {
+        Path file = Files.createTempDirectory("soak").resolve("dependencies.json");
+        DependencyIndex index = new DependencyIndex(file);
+        index.record(version("app", "1.0", "lib"), "app.jar", true);
+        DependencyIndex loaded = new DependencyIndex(file);
+        loaded.load();
+        assertEquals(ImmutableSet.of("app"), loaded.getDependents("lib"));
+        assertEquals("app.jar", loaded.getFilename("app"));
+        assertTrue(loaded.isExplicit("app"));
+    }
+
+    @Test
+    public void testLoadCorrupt() throws IOException {
+        Path file = Files.createTempDirectory("soak").resolve("dependencies.json");
+        Files.write(file, "{\"app\": {\"version\": \"1.0\", \"depend".getBytes(StandardCharsets.UTF_8));
+        DependencyIndex index = new DependencyIndex(file);
+        try {
+            index.load();
+            throw new AssertionError("Expected IOException");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertTrue(index.getPluginIds().isEmpty());
+    }
+
+    @Test
+    public void testLoadPartial() throws IOException {
+        Path file = Files.createTempDirectory("soak").resolve("dependencies.json");
+        Files.write(file, "{\"app\": {\"version\": \"1.0\", \"dependencies\": null}, \"gone\": null, \"tool\": {\"dependencies\": [\"app\"]}}"
+                .getBytes(StandardCharsets.UTF_8));
+        DependencyIndex index = new DependencyIndex(file);
+        index.load();
+        assertEquals(ImmutableSet.of("app", "tool"), index.getPluginIds());
+        assertEquals(ImmutableSet.of("tool"), index.getDependents("app"));
+    }
+}
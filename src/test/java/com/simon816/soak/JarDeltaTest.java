@@ -0,0 +1,124 @@
+package com.simon816.soak;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+public class JarDeltaTest {
+
+    private static byte[] delta(byte[] base, byte[] target, String filename) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JarDelta.create(base, target, filename, out);
+        return out.toByteArray();
+    }
+
+    private static JarDelta.Result apply(byte[] base, byte[] delta) throws IOException {
+        return JarDelta.apply(base, new ByteArrayInputStream(delta));
+    }
+
+    @Test
+    public void testRoundTripRandom() throws IOException {
+        Random random = new Random(0);
+        for (int i = 0; i < 300; i++) {
+            byte[] base = new byte[random.nextInt(20000)];
+            random.nextBytes(base);
+            // Splice random edits into a copy of the base
+            ByteArrayOutputStream target = new ByteArrayOutputStream();
+            int pos = 0;
+            while (pos < base.length) {
+                int keep = Math.min(base.length - pos, random.nextInt(4000));
+                target.write(base, pos, keep);
+                pos += keep + random.nextInt(100);
+                byte[] inserted = new byte[random.nextInt(300)];
+                random.nextBytes(inserted);
+                target.write(inserted, 0, inserted.length);
+            }
+            byte[] expected = target.toByteArray();
+            JarDelta.Result result = apply(base, delta(base, expected, "plugin.jar"));
+            assertArrayEquals(expected, result.getBytes());
+            assertEquals("plugin.jar", result.getFilename());
+        }
+    }
+
+    @Test
+    public void testUnchangedJarIsMostlyCopied() throws IOException {
+        byte[] base = new byte[100000];
+        new Random(1).nextBytes(base);
+        assertTrue(delta(base, base, "plugin.jar").length < 100);
+        assertArrayEquals(base, apply(base, delta(base, base, "plugin.jar")).getBytes());
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongBase() throws IOException {
+        byte[] base = new byte[2000];
+        new Random(2).nextBytes(base);
+        apply(new byte[1999], delta(base, base, "plugin.jar"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTargetTooLarge() throws IOException {
+        apply(new byte[0], header(0, Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IOException.class)
+    public void testHashMismatch() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(header(10, 10));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1); // Copy
+        out.writeInt(0);
+        out.writeInt(10);
+        out.writeByte(0); // End
+        apply(new byte[10], bytes.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsafeFilename() throws IOException {
+        byte[] base = new byte[2000];
+        apply(base, delta(base, base, "../plugin.jar"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeTargetLength() throws IOException {
+        apply(new byte[0], header(0, -1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCopyOverflow() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(header(10, 10));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1); // Copy
+        out.writeInt(5);
+        out.writeInt(Integer.MAX_VALUE);
+        apply(new byte[10], bytes.toByteArray());
+    }
+
+    @Test
+    public void testSafeFilename() {
+        assertTrue(JarDelta.isSafeFilename("plugin-1.0.jar"));
+        assertFalse(JarDelta.isSafeFilename("../plugin.jar"));
+        assertFalse(JarDelta.isSafeFilename("dir\\plugin.jar"));
+        assertFalse(JarDelta.isSafeFilename("plugin.zip"));
+    }
+
+    private static byte[] header(int baseLength, int targetLength) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x534B4431);
+        out.writeUTF("plugin.jar");
+        out.writeInt(baseLength);
+        out.writeInt(targetLength);
+        out.write(new byte[16]);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,43 @@
+package com.simon816.soak;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+public class PluginIdTrieTest {
+
+    private static final PluginIdTrie TRIE = new PluginIdTrie(ImmutableList.of("worldedit", "nucleus", "WorldGuard", "world", "luckperms"));
+
+    @Test
+    public void testAlphabeticalOrder() {
+        assertEquals(ImmutableList.of("world", "worldedit", "WorldGuard"), TRIE.complete("w", 10));
+        assertEquals(ImmutableList.of("luckperms", "nucleus", "world", "worldedit", "WorldGuard"), TRIE.complete("", 10));
+    }
+
+    @Test
+    public void testCaseFolding() {
+        assertEquals(ImmutableList.of("WorldGuard"), TRIE.complete("worldg", 10));
+        assertEquals(ImmutableList.of("nucleus"), TRIE.complete("NUC", 10));
+    }
+
+    @Test
+    public void testLimit() {
+        assertEquals(ImmutableList.of("world", "worldedit"), TRIE.complete("wor", 2));
+        assertTrue(TRIE.complete("wor", 0).isEmpty());
+    }
+
+    @Test
+    public void testNoMatch() {
+        assertTrue(TRIE.complete("worldx", 10).isEmpty());
+        assertTrue(PluginIdTrie.EMPTY.complete("", 10).isEmpty());
+    }
+
+    @Test
+    public void testDuplicates() {
+        PluginIdTrie trie = new PluginIdTrie(ImmutableList.of("nucleus", "nucleus", "Nucleus"));
+        assertEquals(1, trie.size());
+        assertEquals(ImmutableList.of("nucleus"), trie.complete("n", 10));
+    }
+}